@@ -36,6 +36,7 @@ public class EnhancedInfusionRecipe extends InfusionRecipe {
 
     protected final RecipeIngredient central;
     protected final List<RecipeIngredient> components;
+    private volatile RecipeMatcher matcher;
 
     protected EnhancedInfusionRecipe(String research, Object output, int inst, AspectList aspects2, RecipeIngredient input, List<RecipeIngredient> recipe) {
         super(research, output, inst, aspects2, input.getRepresentativeStack(), recipe.stream().map(RecipeIngredient::getRepresentativeStack).toArray(ItemStack[]::new));
@@ -57,6 +58,10 @@ public class EnhancedInfusionRecipe extends InfusionRecipe {
         if (!this.research.isEmpty() && !ThaumcraftApiHelper.isResearchComplete(player.getCommandSenderName(), this.research)) {
             return false;
         }
+        return getMatcher().matches(this, input, central);
+    }
+
+    boolean matchesInterpreted(List<ItemStack> input, ItemStack central) {
         if (!getCentral().matches(central)) return false;
         List<ItemStack> l = new ArrayList<>(input);
 
@@ -73,4 +78,13 @@ public class EnhancedInfusionRecipe extends InfusionRecipe {
         }
         return true;
     }
+
+    RecipeMatcher getMatcher() {
+        // built on first use instead of in constructor so oredict and items are settled by then
+        // racing threads get the same instance from RecipeMatcherCompiler's cache
+        RecipeMatcher matcher = this.matcher;
+        if (matcher == null)
+            this.matcher = matcher = RecipeMatcher.create(getCentral(), getComponentsExt());
+        return matcher;
+    }
 }
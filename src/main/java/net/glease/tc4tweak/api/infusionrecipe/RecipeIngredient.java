@@ -102,7 +102,7 @@ public interface RecipeIngredient {
      * @return constructed ingredient
      */
     static RecipeIngredient oredict(String name) {
-        return new RecipeIngredient() {
+        return new RecipeIngredientSpecializable() {
 
             private int oreID = -1;
 
@@ -117,6 +117,13 @@ public interface RecipeIngredient {
                     oreID = OreDictionary.getOreID(name);
                 return ArrayUtils.contains(OreDictionary.getOreIDs(stack), oreID);
             }
+
+            @Override
+            void specialize(RecipeMatcherCompiler.Emitter emitter) {
+                if (oreID == -1)
+                    oreID = OreDictionary.getOreID(name);
+                emitter.oreID(oreID);
+            }
         };
     }
 
@@ -144,7 +151,7 @@ public interface RecipeIngredient {
      * @return constructed ingredient
      */
     static RecipeIngredient oredictStrict(String name) {
-        return new RecipeIngredient() {
+        return new RecipeIngredientSpecializable() {
 
             private int oreID = -1;
 
@@ -160,6 +167,13 @@ public interface RecipeIngredient {
                 int[] oreIDs = OreDictionary.getOreIDs(stack);
                 return oreIDs.length == 1 && oreIDs[0] == oreID;
             }
+
+            @Override
+            void specialize(RecipeMatcherCompiler.Emitter emitter) {
+                if (oreID == -1)
+                    oreID = OreDictionary.getOreID(name);
+                emitter.oreIDStrict(oreID);
+            }
         };
     }
 
@@ -168,12 +182,15 @@ public interface RecipeIngredient {
      *
      * HOWEVER, if the given item has a metadata of {@link OreDictionary#WILDCARD_VALUE} (or {@code Short.MAX-1}),
      * then it will allow any itemstack with the give item, regardless of what metadata or NBT tag either has.
+     *
+     * Do not modify the item or metadata of given stacks afterwards. With {@code -Dtc4recipelib.specializeMatchers=true}
+     * they are read once when the recipe is first matched, otherwise they are read on every match.
      * @param target match target
      * @param checkNBTTags false to ignore nbt tag mismatch, true otherwise
      * @return constructed ingredient
      */
     static RecipeIngredient item(boolean checkNBTTags, ItemStack target) {
-        return new RecipeIngredient() {
+        return new RecipeIngredientSpecializable() {
             @Override
             public List<ItemStack> getRepresentativeStacks() {
                 return Collections.singletonList(target);
@@ -183,6 +200,11 @@ public interface RecipeIngredient {
             public boolean matches(ItemStack stack) {
                 return Utility.itemMatches(target, stack, checkNBTTags);
             }
+
+            @Override
+            void specialize(RecipeMatcherCompiler.Emitter emitter) {
+                emitter.item(target, checkNBTTags);
+            }
         };
     }
 
@@ -191,12 +213,16 @@ public interface RecipeIngredient {
      *
      * HOWEVER, if the given item has a metadata of {@link OreDictionary#WILDCARD_VALUE} (or {@code Short.MAX-1}),
      * then it will allow any itemstack with the give item, regardless of what metadata or NBT tag either has.
+     *
+     * Do not modify the given array, or the item or metadata of given stacks afterwards. With
+     * {@code -Dtc4recipelib.specializeMatchers=true} they are read once when the recipe is first matched, otherwise
+     * they are read on every match.
      * @param targets match targets
      * @param checkNBTTags false to ignore nbt tag mismatch, true otherwise
      * @return constructed ingredient
      */
     static RecipeIngredient items(boolean checkNBTTags, ItemStack... targets) {
-        return new RecipeIngredient() {
+        return new RecipeIngredientSpecializable() {
             @Override
             public List<ItemStack> getRepresentativeStacks() {
                 return Arrays.asList(targets);
@@ -210,6 +236,12 @@ public interface RecipeIngredient {
                 }
                 return false;
             }
+
+            @Override
+            void specialize(RecipeMatcherCompiler.Emitter emitter) {
+                for (ItemStack target : targets)
+                    emitter.item(target, checkNBTTags);
+            }
         };
     }
 
@@ -7,7 +7,7 @@ import java.util.List;
 import com.google.common.collect.ImmutableList;
 import net.minecraft.item.ItemStack;
 
-class RecipeIngredientOr implements RecipeIngredient {
+class RecipeIngredientOr extends RecipeIngredientSpecializable {
     private final RecipeIngredient[] or;
 
     RecipeIngredientOr(RecipeIngredient... or) {
@@ -39,4 +39,10 @@ class RecipeIngredientOr implements RecipeIngredient {
         }
         return false;
     }
+
+    @Override
+    void specialize(RecipeMatcherCompiler.Emitter emitter) {
+        for (RecipeIngredient ingredient : or)
+            emitter.emit(ingredient);
+    }
 }
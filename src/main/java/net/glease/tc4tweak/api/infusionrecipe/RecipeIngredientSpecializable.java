@@ -0,0 +1,13 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+/**
+ * Base class of builtin ingredients that know how to inline themselves into a {@link RecipeMatcherCompiler} generated
+ * matcher.
+ */
+abstract class RecipeIngredientSpecializable implements RecipeIngredient {
+    /**
+     * Emit the equivalent of {@link #matches(net.minecraft.item.ItemStack)}.
+     * @param emitter code emitter of the matcher being generated
+     */
+    abstract void specialize(RecipeMatcherCompiler.Emitter emitter);
+}
@@ -0,0 +1,37 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+import java.util.List;
+
+import net.minecraft.item.ItemStack;
+
+/**
+ * Matches the ingredients of an {@link EnhancedInfusionRecipe} against crafting inputs.
+ * <p>
+ * By default every recipe uses {@link #INTERPRETED}, which is {@link EnhancedInfusionRecipe#matchesInterpreted}.
+ * Launch with {@code -Dtc4recipelib.specializeMatchers=true} to have recipes use a generated subclass instead, built on
+ * first use and shared by recipes with the same ingredients, see {@link RecipeMatcherCompiler}.
+ */
+abstract class RecipeMatcher {
+    static final boolean ENABLED = Boolean.getBoolean("tc4recipelib.specializeMatchers");
+
+    static final RecipeMatcher INTERPRETED = new RecipeMatcher() {
+        @Override
+        boolean matches(EnhancedInfusionRecipe recipe, List<ItemStack> input, ItemStack central) {
+            return recipe.matchesInterpreted(input, central);
+        }
+    };
+
+    /**
+     * Same as the ingredient part of {@link EnhancedInfusionRecipe#matches}.
+     * @param recipe recipe to match. a generated matcher falls back to {@link #INTERPRETED} if its ingredients are not
+     *               the ones it was generated for
+     * @param input crafting inputs
+     * @param central center item
+     * @return result
+     */
+    abstract boolean matches(EnhancedInfusionRecipe recipe, List<ItemStack> input, ItemStack central);
+
+    static RecipeMatcher create(RecipeIngredient central, List<RecipeIngredient> components) {
+        return ENABLED ? RecipeMatcherCompiler.compile(central, components) : INTERPRETED;
+    }
+}
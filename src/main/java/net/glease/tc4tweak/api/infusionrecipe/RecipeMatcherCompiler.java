@@ -0,0 +1,435 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.oredict.OreDictionary;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates one {@link RecipeMatcher} subclass per distinct set of ingredients, containing the whole matching loop of
+ * {@link EnhancedInfusionRecipe#matchesInterpreted} with the component loop unrolled. Builtin ingredients are inlined:
+ * ore ids and metadata become {@code ldc}, items and item stacks are read from {@code static final} fields, which the
+ * JIT treats as constants. Anything else, e.g. {@link RecipeIngredientDefer} or third party ingredients, is called via
+ * {@link RecipeIngredient#matches(ItemStack)} on a {@code static final} field, so that call site only ever sees one
+ * receiver. If {@link EnhancedInfusionRecipe#getCentral()} or {@link EnhancedInfusionRecipe#getComponentsExt()} no
+ * longer return the very ingredients it was generated for, e.g. a subclass changed them, the generated code falls back
+ * to {@link EnhancedInfusionRecipe#matchesInterpreted}.
+ * <p>
+ * Generated classes are hidden classes (java 15+) or VM anonymous classes (java 8 to 16) hosted in this package, so they
+ * can call the package private helpers below, and are unloaded once no recipe uses them.
+ * Helpers are used instead of calling minecraft methods directly from generated code, as those would not survive
+ * reobfuscation.
+ */
+final class RecipeMatcherCompiler {
+    private static final Logger log = LogManager.getLogger("TC4RecipeLib");
+    private static final String MATCHER = Type.getInternalName(RecipeMatcher.class);
+    private static final String SELF = Type.getInternalName(RecipeMatcherCompiler.class);
+    private static final String INGREDIENT = Type.getInternalName(RecipeIngredient.class);
+    private static final String STACK = Type.getDescriptor(ItemStack.class);
+    private static final String INGREDIENT_DESC = Type.getDescriptor(RecipeIngredient.class);
+    private static final String RECIPE = Type.getInternalName(EnhancedInfusionRecipe.class);
+    private static final String MATCHES_DESC = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getType(EnhancedInfusionRecipe.class), Type.getType(List.class), Type.getType(ItemStack.class));
+    // local variable slots of generated matches()
+    private static final int LOCAL_INPUT = 2, LOCAL_CENTRAL = 3, LOCAL_COMPONENTS = 4, LOCAL_LIST = 5, LOCAL_ITERATOR = 6, LOCAL_STACK = 7;
+    private static final String NAME = SELF.substring(0, SELF.lastIndexOf('/') + 1) + "RecipeMatcher$Specialized";
+    /**
+     * set on first failure. whatever broke is likely to break every recipe, so stop trying
+     */
+    private static final AtomicBoolean failed = new AtomicBoolean();
+    /**
+     * constants of the class being generated on this thread, until its static initializer takes them
+     */
+    private static final ThreadLocal<Object[]> pendingConstants = new ThreadLocal<>();
+    /**
+     * Keyed by ingredient identity, so recipes rebuilt from the same ingredients share one class. Values are weak so
+     * generated classes can be unloaded once no recipe uses them.
+     */
+    private static final LoadingCache<Key, RecipeMatcher> cache = CacheBuilder.newBuilder()
+            .weakValues()
+            .build(new CacheLoader<Key, RecipeMatcher>() {
+                @Override
+                public RecipeMatcher load(Key key) {
+                    return RecipeMatcherCompiler.load(key);
+                }
+            });
+    /**
+     * (byte[])Lookup, java 15+
+     */
+    private static final MethodHandle defineHiddenClass;
+    /**
+     * (byte[])Class, java 8 to 16
+     */
+    private static final MethodHandle defineAnonymousClass;
+
+    static {
+        // both kinds of class can be unloaded on their own, unlike anything defined into the LaunchClassLoader
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle hidden = null, anonymous = null;
+        try {
+            Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object noOptions = Array.newInstance(classOption, 0);
+            hidden = lookup.findVirtual(MethodHandles.Lookup.class, "defineHiddenClass", MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, noOptions.getClass()));
+            hidden = MethodHandles.insertArguments(hidden, 2, false, noOptions).bindTo(lookup);
+        } catch (ReflectiveOperationException e) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                anonymous = lookup.findVirtual(unsafeClass, "defineAnonymousClass", MethodType.methodType(Class.class, Class.class, byte[].class, Object[].class)).bindTo(theUnsafe.get(null));
+                anonymous = MethodHandles.insertArguments(anonymous, 0, RecipeMatcherCompiler.class);
+                anonymous = MethodHandles.insertArguments(anonymous, 1, (Object) null);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // compile() will report it
+            }
+        }
+        defineHiddenClass = hidden;
+        defineAnonymousClass = anonymous;
+    }
+
+    private RecipeMatcherCompiler() {
+    }
+
+    /**
+     * @return a generated matcher, or {@link RecipeMatcher#INTERPRETED} if there is nothing to specialize, or if
+     * generation failed now or before
+     */
+    static RecipeMatcher compile(RecipeIngredient central, List<RecipeIngredient> components) {
+        if (failed.get()) return RecipeMatcher.INTERPRETED;
+        // e.g. recipes from InfusionRecipeExt.convert(), which are all RecipeIngredientDefer
+        if (!(central instanceof RecipeIngredientSpecializable) && components.stream().noneMatch(RecipeIngredientSpecializable.class::isInstance))
+            return RecipeMatcher.INTERPRETED;
+        return cache.getUnchecked(new Key(central, components));
+    }
+
+    private static RecipeMatcher load(Key key) {
+        try {
+            return instantiate(generate(key.central(), key.components()));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            if (failed.compareAndSet(false, true))
+                log.warn("Cannot generate specialized matcher. Falling back to RecipeIngredient.matches() for all recipes", e);
+            return RecipeMatcher.INTERPRETED;
+        } finally {
+            pendingConstants.remove();
+        }
+    }
+
+    private static byte[] generate(RecipeIngredient central, List<RecipeIngredient> components) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        // no stack map frames before java 6, so COMPUTE_FRAMES and its class loading isn't needed
+        cw.visit(V1_5, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, NAME, null, MATCHER, null);
+        Emitter emitter = new Emitter(NAME);
+
+        MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, MATCHER, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // boolean matches(EnhancedInfusionRecipe recipe, List<ItemStack> input, ItemStack central)
+        // the same as EnhancedInfusionRecipe.matchesInterpreted, with the component loop unrolled
+        mv = cw.visitMethod(0, "matches", MATCHES_DESC, null, null);
+        mv.visitCode();
+        emitter.mv = mv;
+        Label interpret = new Label(), fail = new Label();
+
+        // guard: subclasses may change their ingredients, in which case what we generated no longer applies
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, RECIPE, "getCentral", "()" + INGREDIENT_DESC, false);
+        emitter.constant(central, RecipeIngredient.class);
+        mv.visitJumpInsn(IF_ACMPNE, interpret);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, RECIPE, "getComponentsExt", "()Ljava/util/List;", false);
+        mv.visitVarInsn(ASTORE, LOCAL_COMPONENTS);
+        mv.visitVarInsn(ALOAD, LOCAL_COMPONENTS);
+        mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "size", "()I", true);
+        mv.visitLdcInsn(components.size());
+        mv.visitJumpInsn(IF_ICMPNE, interpret);
+        for (int i = 0; i < components.size(); i++) {
+            mv.visitVarInsn(ALOAD, LOCAL_COMPONENTS);
+            mv.visitLdcInsn(i);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
+            emitter.constant(components.get(i), RecipeIngredient.class);
+            mv.visitJumpInsn(IF_ACMPNE, interpret);
+        }
+
+        // if (!getCentral().matches(central)) return false;
+        Label centralMatched = new Label();
+        emitter.emit(central, LOCAL_CENTRAL, centralMatched);
+        mv.visitJumpInsn(GOTO, fail);
+        mv.visitLabel(centralMatched);
+
+        // List<ItemStack> l = new ArrayList<>(input);
+        mv.visitTypeInsn(NEW, "java/util/ArrayList");
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ALOAD, LOCAL_INPUT);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/util/ArrayList", "<init>", "(Ljava/util/Collection;)V", false);
+        mv.visitVarInsn(ASTORE, LOCAL_LIST);
+        for (RecipeIngredient component : components) {
+            // for (Iterator<ItemStack> iterator = l.iterator(); iterator.hasNext(); )
+            Label next = new Label(), found = new Label();
+            mv.visitVarInsn(ALOAD, LOCAL_LIST);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/ArrayList", "iterator", "()Ljava/util/Iterator;", false);
+            mv.visitVarInsn(ASTORE, LOCAL_ITERATOR);
+            mv.visitLabel(next);
+            mv.visitVarInsn(ALOAD, LOCAL_ITERATOR);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z", true);
+            mv.visitJumpInsn(IFEQ, fail);
+            mv.visitVarInsn(ALOAD, LOCAL_ITERATOR);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;", true);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(ItemStack.class));
+            mv.visitVarInsn(ASTORE, LOCAL_STACK);
+            emitter.emit(component, LOCAL_STACK, found);
+            mv.visitJumpInsn(GOTO, next);
+            // iterator.remove(); continue outer;
+            mv.visitLabel(found);
+            mv.visitVarInsn(ALOAD, LOCAL_ITERATOR);
+            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "remove", "()V", true);
+        }
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(fail);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(interpret);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, LOCAL_INPUT);
+        mv.visitVarInsn(ALOAD, LOCAL_CENTRAL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, RECIPE, "matchesInterpreted", "(Ljava/util/List;" + STACK + ")Z", false);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        List<Object> constants = emitter.constants;
+        for (int i = 0; i < constants.size(); i++)
+            cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "c" + i, emitter.constantTypes.get(i), null, null).visitEnd();
+        mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitMethodInsn(INVOKESTATIC, SELF, "takeConstants", "()[Ljava/lang/Object;", false);
+        for (int i = 0; i < constants.size(); i++) {
+            String desc = emitter.constantTypes.get(i);
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(AALOAD);
+            mv.visitTypeInsn(CHECKCAST, Type.getType(desc).getInternalName());
+            mv.visitFieldInsn(PUTSTATIC, NAME, "c" + i, desc);
+        }
+        mv.visitInsn(POP);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        pendingConstants.set(constants.toArray());
+        return cw.toByteArray();
+    }
+
+    private static RecipeMatcher instantiate(byte[] bytes) throws ReflectiveOperationException {
+        try {
+            if (defineHiddenClass != null) {
+                MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClass.invokeExact(bytes);
+                return (RecipeMatcher) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+            }
+            if (defineAnonymousClass != null) {
+                Constructor<?> constructor = ((Class<?>) defineAnonymousClass.invokeExact(bytes)).getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return (RecipeMatcher) constructor.newInstance();
+            }
+            throw new UnsupportedOperationException("Neither Lookup.defineHiddenClass nor Unsafe.defineAnonymousClass is available");
+        } catch (ReflectiveOperationException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Called from static initializer of generated classes. Class initialization happens on the thread that generated
+     * it, in {@link #instantiate(byte[])}.
+     */
+    static Object[] takeConstants() {
+        Object[] constants = pendingConstants.get();
+        pendingConstants.remove();
+        return constants;
+    }
+
+    private static final class Key {
+        private final RecipeIngredient[] ingredients;
+        private final int hash;
+
+        private Key(RecipeIngredient central, List<RecipeIngredient> components) {
+            ingredients = new RecipeIngredient[components.size() + 1];
+            ingredients[0] = central;
+            int hash = System.identityHashCode(central);
+            for (int i = 0; i < components.size(); i++) {
+                ingredients[i + 1] = components.get(i);
+                hash = hash * 31 + System.identityHashCode(ingredients[i + 1]);
+            }
+            this.hash = hash;
+        }
+
+        private RecipeIngredient central() {
+            return ingredients[0];
+        }
+
+        private List<RecipeIngredient> components() {
+            return Arrays.asList(ingredients).subList(1, ingredients.length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            if (hash != key.hash || ingredients.length != key.ingredients.length) return false;
+            for (int i = 0; i < ingredients.length; i++) {
+                if (ingredients[i] != key.ingredients[i]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Writes the test of one ingredient into the method currently being generated. Each test jumps to the match label
+     * if the ingredient matches and falls through otherwise.
+     */
+    static final class Emitter {
+        private final String owner;
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> constantTypes = new ArrayList<>();
+        private MethodVisitor mv;
+        private int stack;
+        private Label match;
+
+        private Emitter(String owner) {
+            this.owner = owner;
+        }
+
+        private void emit(RecipeIngredient ingredient, int stackSlot, Label match) {
+            this.stack = stackSlot;
+            this.match = match;
+            emit(ingredient);
+        }
+
+        void emit(RecipeIngredient ingredient) {
+            if (ingredient == RecipeIngredient.ERROR) {
+                // never matches. not a RecipeIngredientSpecializable, as RecipeIngredient would then need to
+                // initialize its own subclass
+            } else if (ingredient instanceof RecipeIngredientSpecializable) {
+                ((RecipeIngredientSpecializable) ingredient).specialize(this);
+            } else {
+                constant(ingredient, RecipeIngredient.class);
+                mv.visitVarInsn(ALOAD, stack);
+                mv.visitMethodInsn(INVOKEINTERFACE, INGREDIENT, "matches", "(" + STACK + ")Z", true);
+                mv.visitJumpInsn(IFNE, match);
+            }
+        }
+
+        /**
+         * Same as {@link Utility#itemMatches(ItemStack, ItemStack, boolean)}, except the item and metadata of target
+         * are read now instead of on each match.
+         */
+        void item(ItemStack target, boolean checkNBTTags) {
+            int damage = Items.feather.getDamage(target);
+            constant(target.getItem(), Item.class);
+            if (damage == OreDictionary.WILDCARD_VALUE) {
+                mv.visitVarInsn(ALOAD, stack);
+                helper("itemIs", Item.class, ItemStack.class);
+            } else {
+                mv.visitLdcInsn(damage);
+                mv.visitVarInsn(ALOAD, stack);
+                helper("itemAndDamageIs", Item.class, int.class, ItemStack.class);
+            }
+            if (checkNBTTags) {
+                Label differentItem = new Label();
+                mv.visitJumpInsn(IFEQ, differentItem);
+                constant(target, ItemStack.class);
+                mv.visitVarInsn(ALOAD, stack);
+                helper("tagsEqual", ItemStack.class, ItemStack.class);
+                mv.visitJumpInsn(IFNE, match);
+                mv.visitLabel(differentItem);
+            } else {
+                mv.visitJumpInsn(IFNE, match);
+            }
+        }
+
+        void oreID(int oreID) {
+            mv.visitLdcInsn(oreID);
+            mv.visitVarInsn(ALOAD, stack);
+            helper("hasOreID", int.class, ItemStack.class);
+            mv.visitJumpInsn(IFNE, match);
+        }
+
+        void oreIDStrict(int oreID) {
+            mv.visitLdcInsn(oreID);
+            mv.visitVarInsn(ALOAD, stack);
+            helper("hasOnlyOreID", int.class, ItemStack.class);
+            mv.visitJumpInsn(IFNE, match);
+        }
+
+        private void constant(Object value, Class<?> type) {
+            String desc = Type.getDescriptor(type);
+            mv.visitFieldInsn(GETSTATIC, owner, "c" + constants.size(), desc);
+            constants.add(value);
+            constantTypes.add(desc);
+        }
+
+        private void helper(String name, Class<?>... parameters) {
+            Type[] types = new Type[parameters.length];
+            for (int i = 0; i < parameters.length; i++)
+                types[i] = Type.getType(parameters[i]);
+            mv.visitMethodInsn(INVOKESTATIC, SELF, name, Type.getMethodDescriptor(Type.BOOLEAN_TYPE, types), false);
+        }
+    }
+
+    static boolean itemIs(Item item, ItemStack given) {
+        return item == given.getItem();
+    }
+
+    static boolean itemAndDamageIs(Item item, int damage, ItemStack given) {
+        return given != null && item == given.getItem() && damage == Items.feather.getDamage(given);
+    }
+
+    static boolean tagsEqual(ItemStack target, ItemStack given) {
+        return ItemStack.areItemStackTagsEqual(target, given);
+    }
+
+    static boolean hasOreID(int oreID, ItemStack given) {
+        return ArrayUtils.contains(OreDictionary.getOreIDs(given), oreID);
+    }
+
+    static boolean hasOnlyOreID(int oreID, ItemStack given) {
+        int[] oreIDs = OreDictionary.getOreIDs(given);
+        return oreIDs.length == 1 && oreIDs[0] == oreID;
+    }
+}
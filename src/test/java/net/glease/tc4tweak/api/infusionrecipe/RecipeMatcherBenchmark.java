@@ -0,0 +1,83 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import thaumcraft.api.aspects.AspectList;
+
+/**
+ * A/B comparison of {@link RecipeMatcher#INTERPRETED} and generated matchers. Run with {@code ./gradlew jmh}.
+ * <p>
+ * Like the infusion matrix, every recipe is tried against the same input. Each mode runs in its own forks, so one mode
+ * does not pollute the type profile of the other. Warmup is long because every generated class is compiled by the JIT on
+ * its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 1)
+public class RecipeMatcherBenchmark {
+    private static final int RECIPES = 256;
+    private static final int COMPONENTS = 8;
+
+    @Param({"interpreted", "specialized"})
+    public String mode;
+
+    private EnhancedInfusionRecipe[] recipes;
+    private RecipeMatcher[] matchers;
+    private List<ItemStack> input;
+    private ItemStack central;
+
+    @Setup
+    public void setup() {
+        TestIngredients.bootstrap();
+        List<RecipeIngredient> kinds = new ArrayList<>(TestIngredients.ingredients().values());
+        // fails every recipe right away, which says nothing about matching speed
+        kinds.remove(RecipeIngredient.ERROR);
+        central = new ItemStack(Items.stick);
+        // every recipe gets past the central check, so the component loop is what gets measured
+        List<RecipeIngredient> centrals = new ArrayList<>();
+        for (RecipeIngredient kind : kinds) {
+            if (kind.matches(central))
+                centrals.add(kind);
+        }
+        recipes = new EnhancedInfusionRecipe[RECIPES];
+        matchers = new RecipeMatcher[RECIPES];
+        for (int i = 0; i < RECIPES; i++) {
+            List<RecipeIngredient> components = new ArrayList<>();
+            for (int j = 0; j < COMPONENTS; j++)
+                components.add(kinds.get((i * 7 + j) % kinds.size()));
+            recipes[i] = new EnhancedInfusionRecipe("", new ItemStack(Items.diamond), 0, new AspectList(), centrals.get(i % centrals.size()), components);
+            matchers[i] = "specialized".equals(mode) ?
+                    RecipeMatcherCompiler.compile(recipes[i].getCentral(), recipes[i].getComponentsExt()) :
+                    RecipeMatcher.INTERPRETED;
+        }
+        input = TestIngredients.stacks();
+    }
+
+    @Benchmark
+    public int matchAll() {
+        int matched = 0;
+        for (int i = 0; i < RECIPES; i++) {
+            if (matchers[i].matches(recipes[i], input, central))
+                matched++;
+        }
+        return matched;
+    }
+}
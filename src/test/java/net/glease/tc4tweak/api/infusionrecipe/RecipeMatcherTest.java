@@ -0,0 +1,179 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import thaumcraft.api.aspects.AspectList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Generated matchers must agree with {@link EnhancedInfusionRecipe#matchesInterpreted} on everything, including thrown
+ * exceptions.
+ */
+public class RecipeMatcherTest {
+    @BeforeClass
+    public static void bootstrap() {
+        TestIngredients.bootstrap();
+    }
+
+    @Test
+    public void eachIngredientAgrees() {
+        for (Map.Entry<String, RecipeIngredient> e : TestIngredients.ingredients().entrySet()) {
+            // used as central and as the second component, so that the first component has to skip it
+            RecipeIngredient ingredient = e.getValue();
+            EnhancedInfusionRecipe recipe = new TestRecipe(ingredient, Arrays.asList(RecipeIngredient.item(false, new ItemStack(Items.stick)), ingredient));
+            RecipeMatcher matcher = compile(recipe);
+            for (ItemStack stack : stacksWithNull()) {
+                List<ItemStack> input = Arrays.asList(new ItemStack(Items.stick), stack);
+                assertEquals(e.getKey() + " on " + stack,
+                        outcome(() -> recipe.matchesInterpreted(input, stack)),
+                        outcome(() -> matcher.matches(recipe, input, stack)));
+            }
+        }
+    }
+
+    @Test
+    public void recipeAgrees() {
+        Map<String, RecipeIngredient> ingredients = TestIngredients.ingredients();
+        EnhancedInfusionRecipe recipe = new TestRecipe(ingredients.get("item exact"),
+                Arrays.asList(ingredients.get("items nbt"), ingredients.get("oredict"), ingredients.get("or"), ingredients.get("defer")));
+        assertAgrees(recipe, compile(recipe));
+    }
+
+    @Test
+    public void mutatedComponentsFallBack() {
+        TestRecipe recipe = new TestRecipe(RecipeIngredient.oredict("tc4rlTestStick"),
+                new ArrayList<>(Arrays.asList(RecipeIngredient.item(false, new ItemStack(Items.stick)), RecipeIngredient.oredict("tc4rlTestA"))));
+        RecipeMatcher matcher = compile(recipe);
+        List<ItemStack> input = Arrays.asList(new ItemStack(Items.stick), new ItemStack(Items.dye, 1, 4));
+        ItemStack central = new ItemStack(Items.stick);
+        assertFalse(matcher.matches(recipe, input, central));
+        recipe.components.set(1, RecipeIngredient.item(false, new ItemStack(Items.dye, 1, 4)));
+        assertTrue(matcher.matches(recipe, input, central));
+        recipe.components.add(RecipeIngredient.ERROR);
+        assertFalse(matcher.matches(recipe, input, central));
+        assertAgrees(recipe, matcher);
+    }
+
+    @Test
+    public void overriddenGettersFallBack() {
+        RecipeIngredient replacement = RecipeIngredient.item(false, new ItemStack(Items.feather));
+        EnhancedInfusionRecipe recipe = new TestRecipe(RecipeIngredient.ERROR, Collections.singletonList(RecipeIngredient.ERROR)) {
+            @Override
+            public RecipeIngredient getCentral() {
+                return replacement;
+            }
+
+            @Override
+            public List<RecipeIngredient> getComponentsExt() {
+                return Collections.singletonList(replacement);
+            }
+        };
+        // generated against the fields, not the getters, so the guard has something to catch
+        RecipeMatcher matcher = RecipeMatcherCompiler.compile(RecipeIngredient.item(false, new ItemStack(Items.stick)), Collections.singletonList(RecipeIngredient.oredict("tc4rlTestStick")));
+        assertNotSame(RecipeMatcher.INTERPRETED, matcher);
+        assertTrue(matcher.matches(recipe, Collections.singletonList(new ItemStack(Items.feather)), new ItemStack(Items.feather)));
+        assertAgrees(recipe, matcher);
+    }
+
+    @Test
+    public void publicMatchesUsesGeneratedMatcher() {
+        // set by the test task in build.gradle
+        assumeTrue("needs -Dtc4recipelib.specializeMatchers=true", RecipeMatcher.ENABLED);
+        Map<String, RecipeIngredient> ingredients = TestIngredients.ingredients();
+        EnhancedInfusionRecipe recipe = new TestRecipe(ingredients.get("oredict single"),
+                Arrays.asList(ingredients.get("item wildcard"), ingredients.get("items nbt"), ingredients.get("custom")));
+        assertPublicMatchesAgrees(recipe);
+        RecipeMatcher matcher = recipe.getMatcher();
+        assertNotSame(RecipeMatcher.INTERPRETED, matcher);
+        assertSame("built once", matcher, recipe.getMatcher());
+        assertSame("shared by recipes with the same ingredients", matcher,
+                new TestRecipe(recipe.getCentral(), recipe.getComponentsExt()).getMatcher());
+    }
+
+    @Test
+    public void nothingToSpecializeStaysInterpreted() {
+        Map<String, RecipeIngredient> ingredients = TestIngredients.ingredients();
+        EnhancedInfusionRecipe recipe = new TestRecipe(ingredients.get("defer"),
+                Arrays.asList(ingredients.get("custom"), ingredients.get("defer"), RecipeIngredient.ERROR));
+        assertPublicMatchesAgrees(recipe);
+        assertSame(RecipeMatcher.INTERPRETED, recipe.getMatcher());
+        assertSame(RecipeMatcher.INTERPRETED, RecipeMatcher.create(recipe.getCentral(), recipe.getComponentsExt()));
+    }
+
+    /**
+     * Goes through {@link EnhancedInfusionRecipe#matches(ArrayList, ItemStack, net.minecraft.world.World, net.minecraft.entity.player.EntityPlayer)}.
+     * Recipes here have no research, so world and player are never looked at.
+     */
+    private static void assertPublicMatchesAgrees(EnhancedInfusionRecipe recipe) {
+        List<ItemStack> stacks = TestIngredients.stacks();
+        for (int from = 0; from < stacks.size(); from++) {
+            for (int to = from; to <= stacks.size(); to++) {
+                ArrayList<ItemStack> input = new ArrayList<>(stacks.subList(from, to));
+                for (ItemStack central : stacks) {
+                    assertEquals(input + " around " + central,
+                            recipe.matchesInterpreted(input, central),
+                            recipe.matches(input, central, null, null));
+                }
+            }
+        }
+    }
+
+    private static void assertAgrees(EnhancedInfusionRecipe recipe, RecipeMatcher matcher) {
+        List<ItemStack> stacks = TestIngredients.stacks();
+        // every window of the stack list as input, each stack in turn as central
+        for (int from = 0; from < stacks.size(); from++) {
+            for (int to = from; to <= stacks.size(); to++) {
+                List<ItemStack> input = stacks.subList(from, to);
+                for (ItemStack central : stacks) {
+                    assertEquals(input + " around " + central,
+                            recipe.matchesInterpreted(input, central),
+                            matcher.matches(recipe, input, central));
+                }
+            }
+        }
+    }
+
+    private static RecipeMatcher compile(EnhancedInfusionRecipe recipe) {
+        RecipeMatcher matcher = RecipeMatcherCompiler.compile(recipe.getCentral(), recipe.getComponentsExt());
+        assertNotSame("generation failed", RecipeMatcher.INTERPRETED, matcher);
+        return matcher;
+    }
+
+    private static List<ItemStack> stacksWithNull() {
+        List<ItemStack> stacks = new ArrayList<>(TestIngredients.stacks());
+        stacks.add(null);
+        return stacks;
+    }
+
+    /**
+     * @return the result, or the class of thrown exception
+     */
+    private static Object outcome(Callable<Boolean> test) {
+        try {
+            return test.call();
+        } catch (Exception e) {
+            return e.getClass();
+        }
+    }
+
+    static class TestRecipe extends EnhancedInfusionRecipe {
+        TestRecipe(RecipeIngredient central, List<RecipeIngredient> components) {
+            super("", new ItemStack(Items.diamond), 0, new AspectList(), central, components);
+        }
+    }
+}
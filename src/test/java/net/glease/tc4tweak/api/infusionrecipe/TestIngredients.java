@@ -0,0 +1,85 @@
+package net.glease.tc4tweak.api.infusionrecipe;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.oredict.OreDictionary;
+
+/**
+ * One of each kind of ingredient and a few stacks to try them against. Shared by tests and benchmarks.
+ */
+final class TestIngredients {
+    private static boolean initialized;
+
+    private TestIngredients() {
+    }
+
+    static synchronized void bootstrap() {
+        if (initialized) return;
+        initialized = true;
+        Bootstrap.func_151354_b();
+        OreDictionary.registerOre("tc4rlTestStick", Items.stick);
+        OreDictionary.registerOre("tc4rlTestA", Items.feather);
+        OreDictionary.registerOre("tc4rlTestB", Items.feather);
+    }
+
+    static ItemStack tagged(ItemStack stack, String value) {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("tc4rlTest", value);
+        stack.setTagCompound(tag);
+        return stack;
+    }
+
+    /**
+     * @return ingredients keyed by a description for use in assertion messages
+     */
+    static Map<String, RecipeIngredient> ingredients() {
+        RecipeIngredient custom = new RecipeIngredient() {
+            @Override
+            public List<ItemStack> getRepresentativeStacks() {
+                return Arrays.asList(new ItemStack(Items.stick, 2), new ItemStack(Items.feather, 2));
+            }
+
+            @Override
+            public boolean matches(ItemStack stack) {
+                return stack.stackSize > 1;
+            }
+        };
+        Map<String, RecipeIngredient> ingredients = new LinkedHashMap<>();
+        ingredients.put("item exact", RecipeIngredient.item(false, new ItemStack(Items.dye, 1, 4)));
+        ingredients.put("item wildcard", RecipeIngredient.item(false, new ItemStack(Items.dye, 1, OreDictionary.WILDCARD_VALUE)));
+        ingredients.put("item nbt", RecipeIngredient.item(true, tagged(new ItemStack(Items.feather), "a")));
+        ingredients.put("item wildcard nbt", RecipeIngredient.item(true, tagged(new ItemStack(Items.feather, 1, OreDictionary.WILDCARD_VALUE), "a")));
+        ingredients.put("items", RecipeIngredient.items(false, new ItemStack(Items.stick), new ItemStack(Items.dye, 1, 4)));
+        ingredients.put("items nbt", RecipeIngredient.items(true, tagged(new ItemStack(Items.feather), "a"), new ItemStack(Items.stick)));
+        ingredients.put("oredict", RecipeIngredient.oredict("tc4rlTestA"));
+        ingredients.put("oredict single", RecipeIngredient.oredict("tc4rlTestStick"));
+        ingredients.put("oredictStrict single", RecipeIngredient.oredictStrict("tc4rlTestStick"));
+        ingredients.put("oredictStrict multiple", RecipeIngredient.oredictStrict("tc4rlTestA"));
+        ingredients.put("or", RecipeIngredient.oredict("tc4rlTestStick").or(RecipeIngredient.item(false, new ItemStack(Items.dye, 1, 4))).or(custom));
+        ingredients.put("ERROR", RecipeIngredient.ERROR);
+        ingredients.put("defer", new RecipeIngredientDefer(MethodHandles.constant(RecipeIngredient.class, RecipeIngredient.oredict("tc4rlTestA"))));
+        ingredients.put("custom", custom);
+        return ingredients;
+    }
+
+    static List<ItemStack> stacks() {
+        return Arrays.asList(
+                new ItemStack(Items.stick),
+                new ItemStack(Items.stick, 2),
+                new ItemStack(Items.dye, 1, 4),
+                new ItemStack(Items.dye, 1, 1),
+                new ItemStack(Items.feather),
+                tagged(new ItemStack(Items.feather), "a"),
+                tagged(new ItemStack(Items.feather), "b"),
+                new ItemStack(Items.diamond)
+        );
+    }
+}